@@ -1,32 +1,76 @@
 package mybank;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.function.LongSupplier;
 
 /**
  * Program loop and logic for the console-based banking program. The program allows for multiple account
  * creations, displaying, withdrawals, deposits, and some error handling about the user input.
  * This also functions as the entry point / main class file for the whole program.
+ *
+ * Every menu operation comes in two forms: a parameterless one that prompts for its input through the scanner,
+ * and one that takes the input as parameters. The prompting form only reads the input and hands it to the same
+ * helpers as the parameterized form, so both run the same banking logic.
  */
 public class BankSystem
 {
     private final HashMap<String, BankAccount> accounts;
     private boolean runningState;
     private final Scanner scanner;
+    private final PrintStream out;
+    private final VelocityLimiter velocityLimiter;
+    private final LongSupplier clock;
 
     public static void main(String[] args)
     {
         BankSystem mainSystem = new BankSystem();
+        mainSystem.run();
     }
 
     /**
-     * Establishes program loop
+     * Sets up a bank without accounts that uses the console for input and output.
      */
     public BankSystem()
+    {
+        this(System.in, System.out, new VelocityLimiter());     // using console input
+    }
+
+    /**
+     * Sets up a bank without accounts that reads the time from the system clock.
+     * @param in source of the menu input
+     * @param out destination of the prompts and of the operation results
+     * @param velocityLimiter limiter applied to withdrawals and passcode attempts, or null to run without
+     */
+    public BankSystem(InputStream in, PrintStream out, VelocityLimiter velocityLimiter)
+    {
+        this(in, out, velocityLimiter, System::currentTimeMillis);
+    }
+
+    /**
+     * Sets up a bank without accounts.
+     * @param in source of the menu input
+     * @param out destination of the prompts and of the operation results
+     * @param velocityLimiter limiter applied to withdrawals and passcode attempts, or null to run without
+     * @param clock current time in milliseconds, as given to the velocity limiter
+     */
+    public BankSystem(InputStream in, PrintStream out, VelocityLimiter velocityLimiter, LongSupplier clock)
+    {
+        this.accounts = new HashMap<>();
+        this.scanner = new Scanner(in);
+        this.out = out;
+        this.velocityLimiter = velocityLimiter;
+        this.clock = clock;
+    }
+
+    /**
+     * Establishes program loop
+     */
+    public void run()
     {
         runningState = true;
-        accounts = new HashMap<>();
-        scanner = new Scanner(System.in);           // using console input
         int choice;
 
         /*
@@ -57,54 +101,71 @@ public class BankSystem
             }
             catch(InputMismatchException inputExcept)
             {
-                System.out.println("Unexpected input");
+                out.println("Unexpected input");
                 scanner.nextLine(); // flush any remaining input
             }
             catch(NameAlreadyExists | WrongChoiceException | InvalidPasscodeException
-                  | AccountDoesNotExistException | WrongPasscodeWhenFindingException | WithdrawalAmountException except)
+                  | AccountDoesNotExistException | WrongPasscodeWhenFindingException | WithdrawalAmountException
+                  | VelocityLimitExceededException except)
             {
-                System.out.println(except.getMessage());
+                out.println(except.getMessage());
             }
         }
     }
 
     /**
-     * Method to instantiate a new BankAccount and add it to the hashmap of existing accounts.
-     * Since the hashmap is indexed by name, only one bank account can occupy the same name. In reality, names
-     * are not quite unique among many people so remedying this issue requires using an easily differentiable
-     * key (like a numeric ID). 
+     * Prompts for the details of a new account and creates it.
      */
     public void createAccount()
     {
-        String name, passcode;
-        double startBalance;
         BankAccount newAccount;
 
-        System.out.println("\n**Create New Account**");
-        System.out.println("1. Create Standard Account");
-        System.out.println("2. Create VIP Account");
-        System.out.print("Enter your choice: ");
+        out.println("\n**Create New Account**");
+        out.println("1. Create Standard Account");
+        out.println("2. Create VIP Account");
+        out.print("Enter your choice: ");
         int choice = obtainInt();
         if(choice == 1 || choice == 2)
         {
+            // built as the input comes so that an invalid passcode is reported before the balance is asked for
             newAccount = (choice == 1) ? new standardAccount() : new VIPAccount();
-            System.out.print("Enter name: ");
+            out.print("Enter name: ");
             newAccount.setName(scanner.nextLine());
 
-            System.out.print("Enter passcode: ");
+            out.print("Enter passcode: ");
             newAccount.setPasscode(scanner.nextLine());
 
-            System.out.print("Starting balance: ");
+            out.print("Starting balance: ");
             newAccount.setBalance(obtainDouble());
 
-            // assuming no duplicate names at input
-            accounts.put(newAccount.getName(), newAccount);
-            System.out.println("Account created!!");
+            addAccount(newAccount);
         }
         else
             throw new WrongChoiceException();
     }
 
+    /**
+     * Method to instantiate a new BankAccount and add it to the hashmap of existing accounts.
+     * Since the hashmap is indexed by name, only one bank account can occupy the same name. In reality, names
+     * are not quite unique among many people so remedying this issue requires using an easily differentiable
+     * key (like a numeric ID).
+     * @param accountType type of the account (STANDARD or VIP)
+     * @param name of the account
+     * @param passcode of the account
+     * @param startBalance initial balance of the account
+     * @throws InvalidPasscodeException if the passcode does not adhere to the 4-digit format
+     */
+    public void createAccount(AccountTypes accountType, String name, String passcode, double startBalance)
+            throws InvalidPasscodeException
+    {
+        BankAccount newAccount = (accountType == AccountTypes.STANDARD) ? new standardAccount() : new VIPAccount();
+        newAccount.setName(name);
+        newAccount.setPasscode(passcode);
+        newAccount.setBalance(startBalance);
+
+        addAccount(newAccount);
+    }
+
     /**
      * Try to obtain a name and display its corresponding account stored in the HashMap. If the account
      * belonging to that name does not exist, show a corresponding message.
@@ -114,10 +175,10 @@ public class BankSystem
         // obtain name
         String name;
 
-        System.out.print("Enter your name: ");
+        out.print("Enter your name: ");
         name = scanner.nextLine();
 
-        displayAccountHelper(name);
+        displayAccount(name);
     }
 
     /**
@@ -125,85 +186,86 @@ public class BankSystem
      * @param name of the account
      * @throws AccountDoesNotExistException if the given name is not bound to an account in the HashMap
      */
-    private void displayAccountHelper(String name) throws AccountDoesNotExistException
+    public void displayAccount(String name) throws AccountDoesNotExistException
     {
-        BankAccount retrievedAccount;
-        if((retrievedAccount = accounts.getOrDefault(name, null))  == null)
-        {
-            throw new AccountDoesNotExistException(name);
-        }
-        else
-        {
-            System.out.println("**Account Details**");
-            System.out.println("Name: " + retrievedAccount.getName());
-            System.out.println("Account Type: " + retrievedAccount.getAccountType());
-            System.out.println("Balance: " + retrievedAccount.getBalanceString());
-        }
+        BankAccount retrievedAccount = findAccount(name);
+
+        out.println("**Account Details**");
+        out.println("Name: " + retrievedAccount.getName());
+        out.println("Account Type: " + retrievedAccount.getAccountType());
+        out.println("Balance: " + retrievedAccount.getBalanceString());
     }
 
     /**
      * Attempts to withdraw a given amount from a name-passcode specified account that exists in the accounts
-     * HashMap.
+     * HashMap, prompting for each of them.
      */
-    public void withdrawFromAccount() throws AccountDoesNotExistException, WrongPasscodeWhenFindingException
+    public void withdrawFromAccount() throws AccountDoesNotExistException, WrongPasscodeWhenFindingException,
+                                             VelocityLimitExceededException
     {
-        String name, passcode;
-        double withdrawAmount;
+        String name;
         BankAccount retrievedAccount;
 
-        System.out.println("\n**Transaction - Withdraw**");
-        System.out.print("Enter your name: ");
+        out.println("\n**Transaction - Withdraw**");
+        out.print("Enter your name: ");
         name = scanner.nextLine();
-        if((retrievedAccount = accounts.getOrDefault(name, null))  == null)
-        {
-            throw new AccountDoesNotExistException(name);
-        }
-        else
-        {
-            System.out.print("Enter passcode: ");
-            passcode = scanner.nextLine();
-            if(!retrievedAccount.passcodeMatch(passcode))
-            {
-                throw new WrongPasscodeWhenFindingException();
-            }
-            else
-            {
-                System.out.print("Enter amount to withdraw: ");
-                withdrawAmount = obtainDouble();
-                retrievedAccount.withdraw(withdrawAmount);
-                System.out.println("Name: " + retrievedAccount.getName());
-                System.out.println("Balance: " + retrievedAccount.getBalanceString());
-            }
-        }
+        retrievedAccount = findAccount(name);
+
+        checkPasscodeAttempts(retrievedAccount);
+        out.print("Enter passcode: ");
+        verifyPasscode(retrievedAccount, scanner.nextLine());
+
+        out.print("Enter amount to withdraw: ");
+        completeWithdrawal(retrievedAccount, obtainDouble());
     }
 
     /**
-     * Attempts to do the deposit process to the account.
+     * Attempts to withdraw a given amount from a name-passcode specified account that exists in the accounts
+     * HashMap. The withdrawal must also stay within the velocity limits of the account type.
+     * @param name of the account
+     * @param passcode given for the account
+     * @param withdrawAmount amount to withdraw
+     * @throws AccountDoesNotExistException if the account (by the name) could not be found in the hashmap
+     * @throws WrongPasscodeWhenFindingException if the given passcode does not match
+     * @throws VelocityLimitExceededException if the account is locked by failed passcodes or the amount would
+     * exceed the hourly or daily withdrawal limits
+     */
+    public void withdrawFromAccount(String name, String passcode, double withdrawAmount)
+            throws AccountDoesNotExistException, WrongPasscodeWhenFindingException, VelocityLimitExceededException
+    {
+        BankAccount retrievedAccount = findAccount(name);
+        checkPasscodeAttempts(retrievedAccount);
+        verifyPasscode(retrievedAccount, passcode);
+        completeWithdrawal(retrievedAccount, withdrawAmount);
+    }
+
+    /**
+     * Attempts to do the deposit process to the account, prompting for the name and amount.
      * @throws AccountDoesNotExistException
      */
     public void depositToAccount() throws AccountDoesNotExistException
     {
         String name;
-        double depositAmt;
         BankAccount retrievedAccount;
 
-        System.out.println("\n** Transaction - Deposit**");
-        System.out.print("Enter your name: ");
+        out.println("\n** Transaction - Deposit**");
+        out.print("Enter your name: ");
         name = scanner.nextLine();
-        if((retrievedAccount = accounts.getOrDefault(name, null))  == null)
-        {
-            throw new AccountDoesNotExistException(name);
-        }
-        else
-        {
-            System.out.print("Enter amount to deposit: ");
-            depositAmt = obtainDouble();
-            retrievedAccount.deposit(depositAmt);
-            System.out.println("Name: " + retrievedAccount.getName());
-            System.out.println("Balance: " + retrievedAccount.getBalanceString());
-        }
+        retrievedAccount = findAccount(name);
 
+        out.print("Enter amount to deposit: ");
+        completeDeposit(retrievedAccount, obtainDouble());
+    }
 
+    /**
+     * Attempts to do the deposit process to the account.
+     * @param name of the account
+     * @param depositAmt amount to deposit
+     * @throws AccountDoesNotExistException if the account (by the name) could not be found in the hashmap
+     */
+    public void depositToAccount(String name, double depositAmt) throws AccountDoesNotExistException
+    {
+        completeDeposit(findAccount(name), depositAmt);
     }
 
     /**
@@ -222,75 +284,84 @@ public class BankSystem
                 VIPAccs.add(k);
         });
 
-        System.out.println("\nStandard Account Details");
+        out.println("\nStandard Account Details");
         for(String name : standardAccs)
-            displayAccountHelper(name);
+            displayAccount(name);
 
-        System.out.println("\nVIP Account Details");
+        out.println("\nVIP Account Details");
         for(String name : VIPAccs)
-            displayAccountHelper(name);
+            displayAccount(name);
     }
 
     /**
-     * Attempts the remove account transaction.
+     * Attempts the remove account transaction, prompting for the name and passcode.
      * @throws AccountDoesNotExistException if the account (by the name) could not be found in the hashmap
      * @throws WrongPasscodeWhenFindingException if the given passcode does not match
+     * @throws VelocityLimitExceededException if the account is locked by failed passcodes
      */
-    public void removeAccount() throws AccountDoesNotExistException, WrongPasscodeWhenFindingException
+    public void removeAccount() throws AccountDoesNotExistException, WrongPasscodeWhenFindingException,
+                                       VelocityLimitExceededException
     {
-        String name, passcode;
+        String name;
         BankAccount retrievedAccount;
 
-        System.out.println("\n**Transaction - Remove Account**");
-        System.out.print("Enter your name: ");
+        out.println("\n**Transaction - Remove Account**");
+        out.print("Enter your name: ");
         name = scanner.nextLine();
+        retrievedAccount = findAccount(name);
 
-        if((retrievedAccount = accounts.getOrDefault(name, null)) == null)
-        {
-            throw new AccountDoesNotExistException(name);
-        }
-        else
-        {
-            System.out.print("Enter passcode: ");
-            passcode = scanner.nextLine();
-            if(!retrievedAccount.passcodeMatch(passcode))
-            {
-                throw new WrongPasscodeWhenFindingException();
-            }
-            else
-            {
-                accounts.remove(name);
-                System.out.println("Account has been removed!!");
-            }
-        }
+        checkPasscodeAttempts(retrievedAccount);
+        out.print("Enter passcode: ");
+        verifyPasscode(retrievedAccount, scanner.nextLine());
+
+        completeRemoval(retrievedAccount);
     }
 
     /**
-     * Applies the process to display the interest of a specified account.
+     * Attempts the remove account transaction.
+     * @param name of the account
+     * @param passcode given for the account
+     * @throws AccountDoesNotExistException if the account (by the name) could not be found in the hashmap
+     * @throws WrongPasscodeWhenFindingException if the given passcode does not match
+     * @throws VelocityLimitExceededException if the account is locked by failed passcodes
+     */
+    public void removeAccount(String name, String passcode)
+            throws AccountDoesNotExistException, WrongPasscodeWhenFindingException, VelocityLimitExceededException
+    {
+        BankAccount retrievedAccount = findAccount(name);
+        checkPasscodeAttempts(retrievedAccount);
+        verifyPasscode(retrievedAccount, passcode);
+        completeRemoval(retrievedAccount);
+    }
+
+    /**
+     * Applies the process to display the interest of a specified account, prompting for the name and the
+     * number of months.
      * @throws AccountDoesNotExistException if the specified name does not belong to an account
      */
     public void calculateAndDisplayInterest() throws AccountDoesNotExistException
     {
         String name;
-        int months;
         BankAccount retrievedAccount;
-        DecimalFormat df = new DecimalFormat("0.##");
 
-        System.out.println("\n**Transaction - Calculate Interest");
-        System.out.print("Enter your name: ");
+        out.println("\n**Transaction - Calculate Interest");
+        out.print("Enter your name: ");
         name = scanner.nextLine();
+        retrievedAccount = findAccount(name);
 
-        if((retrievedAccount = accounts.getOrDefault(name, null)) == null)
-        {
-            throw new AccountDoesNotExistException(name);
-        }
-        else
-        {
-            System.out.print("Enter the number of months: ");
-            months = obtainInt();
-            System.out.println("The expected interest is: " + df.format(retrievedAccount.calculateInterest(months)));
-        }
+        out.print("Enter the number of months: ");
+        displayInterest(retrievedAccount, obtainInt());
+    }
 
+    /**
+     * Applies the process to display the interest of a specified account.
+     * @param name of the account
+     * @param months of interest building
+     * @throws AccountDoesNotExistException if the specified name does not belong to an account
+     */
+    public void calculateAndDisplayInterest(String name, int months) throws AccountDoesNotExistException
+    {
+        displayInterest(findAccount(name), months);
     }
 
     /**
@@ -306,16 +377,125 @@ public class BankSystem
      */
     public void printMainMenu()
     {
-        System.out.println("\n*** Menu ***");
-        System.out.println("1. Create Account");
-        System.out.println("2. Display");
-        System.out.println("3. Withdraw");
-        System.out.println("4. Deposit ");
-        System.out.println("5. Display All");
-        System.out.println("6. Remove Account");
-        System.out.println("7. Calculate Interest");
-        System.out.println("8. Exit\n");
-        System.out.print("Enter your choice: ");
+        out.println("\n*** Menu ***");
+        out.println("1. Create Account");
+        out.println("2. Display");
+        out.println("3. Withdraw");
+        out.println("4. Deposit ");
+        out.println("5. Display All");
+        out.println("6. Remove Account");
+        out.println("7. Calculate Interest");
+        out.println("8. Exit\n");
+        out.print("Enter your choice: ");
+    }
+
+    /**
+     * Retrieves the account bound to the given name.
+     * @param name of the account
+     * @return the account
+     * @throws AccountDoesNotExistException if the given name is not bound to an account in the HashMap
+     */
+    private BankAccount findAccount(String name) throws AccountDoesNotExistException
+    {
+        BankAccount retrievedAccount;
+        if((retrievedAccount = accounts.getOrDefault(name, null)) == null)
+            throw new AccountDoesNotExistException(name);
+        return retrievedAccount;
+    }
+
+    /**
+     * Adds a new account to the HashMap, replacing any account of the same name.
+     * @param newAccount the account to add
+     */
+    private void addAccount(BankAccount newAccount)
+    {
+        // assuming no duplicate names at input
+        accounts.put(newAccount.getName(), newAccount);
+        out.println("Account created!!");
+    }
+
+    /**
+     * Refuses access to an account that is locked by too many failed passcode attempts. Done before asking for
+     * the passcode.
+     * @param retrievedAccount the account being accessed
+     * @throws VelocityLimitExceededException if the account reached its failed passcode limit
+     */
+    private void checkPasscodeAttempts(BankAccount retrievedAccount) throws VelocityLimitExceededException
+    {
+        if(velocityLimiter != null)
+            velocityLimiter.checkPasscodeAttempts(retrievedAccount.getName(), retrievedAccount.getAccountType(),
+                                                  clock.getAsLong());
+    }
+
+    /**
+     * Verifies the given passcode, counting it against the account's velocity limits when it does not match.
+     * @param retrievedAccount the account being accessed
+     * @param passcode given for the account
+     * @throws WrongPasscodeWhenFindingException if the given passcode does not match
+     */
+    private void verifyPasscode(BankAccount retrievedAccount, String passcode)
+            throws WrongPasscodeWhenFindingException
+    {
+        if(!retrievedAccount.passcodeMatch(passcode))
+        {
+            if(velocityLimiter != null)
+                velocityLimiter.recordFailedPasscode(retrievedAccount.getName(), clock.getAsLong());
+            throw new WrongPasscodeWhenFindingException();
+        }
+    }
+
+    /**
+     * Withdraws from an account whose passcode has been verified and displays the remaining balance.
+     * @param retrievedAccount the account to withdraw from
+     * @param withdrawAmount amount to withdraw
+     * @throws VelocityLimitExceededException if the amount would exceed the hourly or daily withdrawal limits
+     * @throws WithdrawalAmountException if the amount is greater than the balance
+     */
+    private void completeWithdrawal(BankAccount retrievedAccount, double withdrawAmount)
+            throws VelocityLimitExceededException, WithdrawalAmountException
+    {
+        String name = retrievedAccount.getName();
+        if(velocityLimiter != null)
+            velocityLimiter.checkWithdrawal(name, retrievedAccount.getAccountType(), withdrawAmount,
+                                            clock.getAsLong());
+        retrievedAccount.withdraw(withdrawAmount);
+        if(velocityLimiter != null)
+            velocityLimiter.recordWithdrawal(name, withdrawAmount, clock.getAsLong());
+        out.println("Name: " + name);
+        out.println("Balance: " + retrievedAccount.getBalanceString());
+    }
+
+    /**
+     * Deposits to an account and displays the new balance.
+     * @param retrievedAccount the account to deposit to
+     * @param depositAmt amount to deposit
+     */
+    private void completeDeposit(BankAccount retrievedAccount, double depositAmt)
+    {
+        retrievedAccount.deposit(depositAmt);
+        out.println("Name: " + retrievedAccount.getName());
+        out.println("Balance: " + retrievedAccount.getBalanceString());
+    }
+
+    /**
+     * Removes an account whose passcode has been verified.
+     * @param retrievedAccount the account to remove
+     */
+    private void completeRemoval(BankAccount retrievedAccount)
+    {
+        accounts.remove(retrievedAccount.getName());
+        out.println("Account has been removed!!");
+    }
+
+    /**
+     * Displays the interest an account is expected to earn.
+     * @param retrievedAccount the account
+     * @param months of interest building
+     */
+    private void displayInterest(BankAccount retrievedAccount, int months)
+    {
+        DecimalFormat df = new DecimalFormat("0.##");
+        out.println("The expected interest is: " + df.format(retrievedAccount.calculateInterest(months)));
     }
 
     /**
@@ -339,4 +519,4 @@ public class BankSystem
         scanner.nextLine();
         return res;
     }
-}
\ No newline at end of file
+}
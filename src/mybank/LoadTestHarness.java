@@ -0,0 +1,427 @@
+package mybank;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the banking operations. Requests from a seeded WorkloadGenerator are issued open-loop
+ * at a fixed target rate: every request has an intended start time on a fixed schedule, and its latency is
+ * measured from that intended start rather than from the moment it actually ran. A slow request therefore
+ * delays (and is charged to) every request queued behind it, which corrects the measurement for coordinated
+ * omission. The uncorrected service time is reported alongside for comparison.
+ *
+ * The requests are executed by the parameterized operations of a BankSystem, the same code the console menu
+ * runs. Only the console itself is left out: the results the operations print are formatted as usual and
+ * then discarded. Results are printed and saved as a JSON file so that runs can be compared.
+ *
+ * Velocity checks are off by default. When they are enabled, the limiter starts the measurement empty and, unless
+ * the default limits are asked for, uses VelocityLimits.unlimited(), so that the run executes the same mix as one
+ * without checks however long it lasts and only measures what the checks cost.
+ *
+ * Usage: java mybank.LoadTestHarness [--option=value ...], see printUsage() for the options.
+ */
+public class LoadTestHarness
+{
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 0.9999};
+
+    private final BankSystem bank;
+    private final VelocityLimiter velocityLimiter;
+    private final WorkloadGenerator generator;
+    private final DecimalFormat df;
+    private final long[] operationCounts;
+    private final TreeMap<String, Long> errorCounts;
+
+    public static void main(String[] args) throws IOException
+    {
+        Map<String, String> options = parseOptions(args);
+        if(options.containsKey("help"))
+        {
+            printUsage();
+            return;
+        }
+
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "10000"));
+        double zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        double vipRatio = Double.parseDouble(options.getOrDefault("vip-ratio", "0.2"));
+        double wrongPasscodeRatio = Double.parseDouble(options.getOrDefault("wrong-passcode-ratio", "0.02"));
+        double maxAmount = Double.parseDouble(options.getOrDefault("max-amount", "500"));
+        double[] weights = parseMix(options.getOrDefault("mix",
+                "create:5,display:25,withdraw:25,deposit:25,displayAll:0,remove:2,interest:18"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "5000"));
+        double durationSeconds = Double.parseDouble(options.getOrDefault("duration", "10"));
+        double warmupSeconds = Double.parseDouble(options.getOrDefault("warmup", "2"));
+        boolean velocityChecks = Boolean.parseBoolean(options.getOrDefault("velocity-checks", "false"));
+        String velocityLimits = options.getOrDefault("velocity-limits", "unlimited");
+        Path out = Paths.get(options.getOrDefault("out", "load-test-results.json"));
+
+        if(rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0)
+            throw new IllegalArgumentException("Rate and duration must be positive, warmup must not be negative");
+        long measuredOps = (long) (rate * durationSeconds);
+        if(measuredOps <= 0 || measuredOps > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("rate * duration must be between 1 and " + (Integer.MAX_VALUE - 8));
+
+        VelocityLimiter velocityLimiter = null;
+        if(velocityChecks)
+            velocityLimiter = createVelocityLimiter(accountCount, velocityLimits);
+
+        LoadTestHarness harness = new LoadTestHarness(new WorkloadGenerator(seed, accountCount, zipfExponent,
+                weights, vipRatio, wrongPasscodeRatio, maxAmount), velocityLimiter);
+        harness.populate(maxAmount * 10);
+        harness.warmUp((long) (rate * warmupSeconds));
+        harness.resetCounts();
+        Result result = harness.run(rate, (int) measuredOps);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"seed\": ").append(seed).append(",\n");
+        json.append("  \"accounts\": ").append(accountCount).append(",\n");
+        json.append("  \"zipfExponent\": ").append(zipfExponent).append(",\n");
+        json.append("  \"vipRatio\": ").append(vipRatio).append(",\n");
+        json.append("  \"wrongPasscodeRatio\": ").append(wrongPasscodeRatio).append(",\n");
+        json.append("  \"maxAmount\": ").append(maxAmount).append(",\n");
+        json.append("  \"mix\": {");
+        for(WorkloadGenerator.Operation operation : WorkloadGenerator.Operation.values())
+        {
+            json.append(operation.ordinal() == 0 ? "" : ", ")
+                .append('"').append(operation).append("\": ").append(weights[operation.ordinal()]);
+        }
+        json.append("},\n");
+        json.append("  \"velocityChecks\": ").append(velocityChecks).append(",\n");
+        if(velocityChecks)
+            json.append("  \"velocityLimits\": \"").append(velocityLimits).append("\",\n");
+        json.append("  \"warmupSeconds\": ").append(warmupSeconds).append(",\n");
+        harness.appendResult(json, result);
+        json.append("}\n");
+
+        Files.writeString(out, json);
+        harness.printSummary(result);
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    /**
+     * Measured outcome of a load test run. Latencies are in nanoseconds.
+     */
+    static class Result
+    {
+        final double targetRate;
+        final long elapsedNanos;
+        final long[] latencies;         // corrected: measured from the intended start time
+        final long[] serviceTimes;      // uncorrected: measured from the actual start time
+
+        Result(double targetRate, long elapsedNanos, long[] latencies, long[] serviceTimes)
+        {
+            this.targetRate = targetRate;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.serviceTimes = serviceTimes;
+        }
+
+        double achievedRate()
+        {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+    }
+
+    /**
+     * Constructs a harness around a bank without accounts.
+     * @param generator source of the requests
+     * @param velocityLimiter limiter applied to withdrawals and passcode attempts, or null to run without
+     */
+    public LoadTestHarness(WorkloadGenerator generator, VelocityLimiter velocityLimiter)
+    {
+        this.bank = new BankSystem(InputStream.nullInputStream(), new PrintStream(OutputStream.nullOutputStream()),
+                                   velocityLimiter);
+        this.velocityLimiter = velocityLimiter;
+        this.generator = generator;
+        this.df = new DecimalFormat("0.##");
+        this.operationCounts = new long[WorkloadGenerator.Operation.values().length];
+        this.errorCounts = new TreeMap<>();
+    }
+
+    /**
+     * Creates every account of the key space so that the run starts from a steady state.
+     * @param startBalance starting balance of each account
+     */
+    public void populate(double startBalance)
+    {
+        for(int i = 0; i < generator.getAccountCount(); i++)
+            bank.createAccount(generator.accountTypeOf(i), generator.nameOf(i), generator.passcodeOf(i), startBalance);
+    }
+
+    /**
+     * Runs the given number of requests back to back without recording latencies, to let the JIT compile the
+     * hot paths before measuring.
+     * @param operations number of requests to run
+     */
+    public void warmUp(long operations)
+    {
+        for(long i = 0; i < operations; i++)
+            execute(generator.next());
+    }
+
+    /**
+     * Clears the operation and error counters and the withdrawals and passcode attempts recorded by the velocity
+     * limiter (after the warm-up).
+     */
+    public void resetCounts()
+    {
+        Arrays.fill(operationCounts, 0);
+        errorCounts.clear();
+        if(velocityLimiter != null)
+            velocityLimiter.clear();
+    }
+
+    /**
+     * Issues the given number of requests open-loop at the target rate.
+     * @param rate target number of requests per second
+     * @param operations number of requests to issue
+     * @return the measured latencies of the run
+     */
+    public Result run(double rate, int operations)
+    {
+        long[] latencies = new long[operations];
+        long[] serviceTimes = new long[operations];
+        double intervalNanos = 1e9 / rate;
+        long start = System.nanoTime();
+
+        for(int i = 0; i < operations; i++)
+        {
+            long intended = start + (long) (i * intervalNanos);
+            long now;
+            // park while far from the intended start, then spin for the last stretch to stay on schedule
+            while((now = System.nanoTime()) < intended)
+            {
+                if(intended - now > 100_000)
+                    LockSupport.parkNanos(intended - now - 50_000);
+                else
+                    Thread.onSpinWait();
+            }
+
+            execute(generator.next());
+
+            long end = System.nanoTime();
+            latencies[i] = end - intended;
+            serviceTimes[i] = end - now;
+        }
+
+        return new Result(rate, System.nanoTime() - start, latencies, serviceTimes);
+    }
+
+    /**
+     * Executes one request against the bank. Errors that BankSystem reports to the user are counted instead of
+     * printed.
+     * @param request the request to execute
+     */
+    void execute(WorkloadGenerator.Request request)
+    {
+        operationCounts[request.getOperation().ordinal()]++;
+        try
+        {
+            String name = request.getName();
+            switch(request.getOperation())
+            {
+                case CREATE:
+                    bank.createAccount(request.getAccountType(), name, generator.passcodeOf(request.getAccountIndex()),
+                                       request.getAmount());
+                    break;
+                case DISPLAY: bank.displayAccount(name); break;
+                case WITHDRAW: bank.withdrawFromAccount(name, request.getPasscode(), request.getAmount()); break;
+                case DEPOSIT: bank.depositToAccount(name, request.getAmount()); break;
+                case DISPLAY_ALL: bank.displayAll(); break;
+                case REMOVE: bank.removeAccount(name, request.getPasscode()); break;
+                case INTEREST: bank.calculateAndDisplayInterest(name, request.getMonths()); break;
+            }
+        }
+        catch(NameAlreadyExists | InvalidPasscodeException | AccountDoesNotExistException
+              | WrongPasscodeWhenFindingException | WithdrawalAmountException | VelocityLimitExceededException
+              | ArithmeticException except)
+        {
+            errorCounts.merge(except.getClass().getSimpleName(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Appends the measured part of the run as JSON fields (without the enclosing braces).
+     * @param json destination
+     * @param result of the run
+     */
+    void appendResult(StringBuilder json, Result result)
+    {
+        json.append("  \"targetRate\": ").append(result.targetRate).append(",\n");
+        json.append("  \"achievedRate\": ").append(result.achievedRate()).append(",\n");
+        json.append("  \"operations\": ").append(result.latencies.length).append(",\n");
+        json.append("  \"elapsedNanos\": ").append(result.elapsedNanos).append(",\n");
+        json.append("  \"operationCounts\": {");
+        for(WorkloadGenerator.Operation operation : WorkloadGenerator.Operation.values())
+        {
+            json.append(operation.ordinal() == 0 ? "" : ", ")
+                .append('"').append(operation).append("\": ").append(operationCounts[operation.ordinal()]);
+        }
+        json.append("},\n");
+        json.append("  \"errorCounts\": {");
+        String separator = "";
+        for(Map.Entry<String, Long> entry : errorCounts.entrySet())
+        {
+            json.append(separator).append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("  \"latencyNanos\": ");
+        appendPercentiles(json, result.latencies);
+        json.append(",\n");
+        json.append("  \"serviceTimeNanos\": ");
+        appendPercentiles(json, result.serviceTimes);
+        json.append("\n");
+    }
+
+    private static void appendPercentiles(StringBuilder json, long[] values)
+    {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        json.append("{\"min\": ").append(sorted[0]);
+        for(double p : PERCENTILES)
+            json.append(", \"p").append(percentileLabel(p)).append("\": ").append(percentile(sorted, p));
+        json.append(", \"max\": ").append(sorted[sorted.length - 1])
+            .append(", \"mean\": ").append(Arrays.stream(sorted).average().orElse(0)).append('}');
+    }
+
+    /**
+     * Prints a human-readable summary of the run.
+     * @param result of the run
+     */
+    void printSummary(Result result)
+    {
+        DecimalFormat micros = new DecimalFormat("0.0");
+        long[] latencies = result.latencies.clone();
+        long[] serviceTimes = result.serviceTimes.clone();
+        Arrays.sort(latencies);
+        Arrays.sort(serviceTimes);
+
+        System.out.println("\n**Load Test Results**");
+        System.out.println("Operations: " + latencies.length);
+        System.out.println("Target rate: " + df.format(result.targetRate) + " ops/s");
+        System.out.println("Achieved rate: " + df.format(result.achievedRate()) + " ops/s");
+        System.out.println("Errors: " + errorCounts);
+        System.out.println("Percentile   latency (us)   service time (us)");
+        for(double p : PERCENTILES)
+        {
+            System.out.printf("p%-10s %14s %19s%n", percentileLabel(p),
+                    micros.format(percentile(latencies, p) / 1000.0),
+                    micros.format(percentile(serviceTimes, p) / 1000.0));
+        }
+        System.out.printf("%-11s %14s %19s%n", "max",
+                micros.format(latencies[latencies.length - 1] / 1000.0),
+                micros.format(serviceTimes[serviceTimes.length - 1] / 1000.0));
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted array.
+     * @param sorted values in ascending order
+     * @param p percentile between 0 and 1
+     * @return the value at the percentile
+     */
+    static long percentile(long[] sorted, double p)
+    {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static String percentileLabel(double p)
+    {
+        return new DecimalFormat("0.##").format(p * 100);
+    }
+
+    private static Map<String, String> parseOptions(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args)
+        {
+            if(!arg.startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            int equals = arg.indexOf('=');
+            if(equals < 0)
+                options.put(arg.substring(2), "");
+            else
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses an operation mix of the form "create:5,display:25,...". Operations that are not listed get a
+     * weight of zero.
+     * @param mix the operation mix
+     * @return the weights indexed by operation ordinal
+     */
+    private static double[] parseMix(String mix)
+    {
+        double[] weights = new double[WorkloadGenerator.Operation.values().length];
+        for(String entry : mix.split(","))
+        {
+            String[] parts = entry.trim().split(":");
+            if(parts.length != 2)
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            WorkloadGenerator.Operation match = null;
+            for(WorkloadGenerator.Operation operation : WorkloadGenerator.Operation.values())
+            {
+                if(operation.toString().equals(parts[0].trim()))
+                    match = operation;
+            }
+            if(match == null)
+                throw new IllegalArgumentException("Unknown operation: " + parts[0]);
+            weights[match.ordinal()] = Double.parseDouble(parts[1].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Builds the velocity limiter of a run, with sketches sized by VelocityLimiter.widthFor(int).
+     * @param accountCount number of distinct accounts
+     * @param limits "unlimited" for VelocityLimits.unlimited(), "default" for VelocityLimits.defaultsFor
+     * @return the limiter
+     * @throws IllegalArgumentException if the limits are neither of the above
+     */
+    private static VelocityLimiter createVelocityLimiter(int accountCount, String limits)
+    {
+        VelocityLimiter velocityLimiter = new VelocityLimiter(3, VelocityLimiter.widthFor(accountCount));
+        if(limits.equals("unlimited"))
+        {
+            for(AccountTypes accountType : AccountTypes.values())
+                velocityLimiter.setLimits(accountType, VelocityLimits.unlimited());
+        }
+        else if(!limits.equals("default"))
+            throw new IllegalArgumentException("Unknown velocity limits: " + limits);
+        return velocityLimiter;
+    }
+
+    private static void printUsage()
+    {
+        System.out.println("Usage: java mybank.LoadTestHarness [--option=value ...]");
+        System.out.println("  --seed=42                    seed of the workload generator");
+        System.out.println("  --accounts=10000             number of distinct accounts");
+        System.out.println("  --zipf=1.0                   skew of the account popularity (0 is uniform)");
+        System.out.println("  --vip-ratio=0.2              fraction of VIP accounts");
+        System.out.println("  --wrong-passcode-ratio=0.02  fraction of withdrawals/removals with a wrong passcode");
+        System.out.println("  --max-amount=500             largest deposit or withdrawal amount");
+        System.out.println("  --mix=create:5,display:25,withdraw:25,deposit:25,displayAll:0,remove:2,interest:18");
+        System.out.println("                               relative weights. displayAll prints every account, so");
+        System.out.println("                               with thousands of accounts even a small weight of it");
+        System.out.println("                               saturates the run and the latencies measure the queue");
+        System.out.println("  --rate=5000                  target requests per second");
+        System.out.println("  --duration=10                measured seconds");
+        System.out.println("  --warmup=2                   unmeasured warm-up seconds (run back to back)");
+        System.out.println("  --velocity-checks=false      apply the VelocityLimiter to withdrawals and passcodes");
+        System.out.println("  --velocity-limits=unlimited  limits used with velocity checks: unlimited (checked but");
+        System.out.println("                               never reached, same mix as without checks) or default");
+        System.out.println("  --out=load-test-results.json results file");
+    }
+}
@@ -0,0 +1,260 @@
+package mybank;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch whose cells are sliding-window counters. It estimates, for any key, how many events were added
+ * for that key during the last window (e.g. the last hour) and the sum of their amounts, without storing anything
+ * per key, so the memory use is fixed no matter how many accounts are active. A sketch can track several windows
+ * over the same events (e.g. the last hour and the last day): a cell then holds the buckets of all the windows
+ * next to each other, so one key costs one memory access per row however many windows are read. The memory use is
+ * 8 * depth * width * (sum of (buckets + 1) over the windows) bytes.
+ *
+ * Each window is split into buckets, kept in a ring with one extra slot for the bucket in progress. Each bucket of
+ * a cell is a single long packing the epoch of the bucket (the bucket number since the Unix epoch, truncated to
+ * 16 bits), the event count (16 bits) and the amount (32 bits), so both sums come out of one read. A bucket whose
+ * epoch has fallen out of the window reads as zero and is overwritten by the next update of its slot, so expired
+ * buckets are discarded lazily instead of by a clearing pass. Updates are lock-free compare-and-set loops on the
+ * current bucket of each window in each row and read nothing else.
+ *
+ * The estimate never under-counts (apart from concurrent updates racing on the same cell):
+ * - it covers the current bucket and the full buckets before it, that is between buckets and (buckets + 1) bucket
+ *   durations, so an event is forgotten no sooner than one window after it was added;
+ * - keys that collide in every row add to each other's estimates;
+ * - a bucket that saturates at MAX_COUNT or MAX_AMOUNT stays there, so limits below these values still trip;
+ * - a bucket left untouched for a multiple of 65536 bucket durations (over a year for 10-minute buckets) can
+ *   read as live again.
+ * The width should be a small multiple of the number of keys added during a window to keep collisions rare.
+ */
+public class SlidingWindowSketch
+{
+    /**
+     * Largest event count a bucket can hold, adding more saturates at this value.
+     */
+    public static final long MAX_COUNT = (1L << 16) - 1;
+
+    /**
+     * Largest amount a bucket can hold, adding more saturates at this value.
+     */
+    public static final long MAX_AMOUNT = (1L << 32) - 1;
+
+    private static final int EPOCH_SHIFT = 48;
+    private static final int COUNT_SHIFT = 32;
+    private static final long EPOCH_MASK = (1L << 16) - 1;
+
+    private final int depth;
+    private final int widthMask;
+    private final int[] buckets;
+    private final long[] bucketMillis;
+    // first slot of each window within a cell
+    private final int[] offsets;
+    private final int slots;
+    // cells[(row * width + column) * slots + offsets[window] + slot], so the buckets of a cell share a cache line
+    // or two
+    private final AtomicLongArray cells;
+
+    /**
+     * Constructs an empty sketch tracking a single window.
+     * @param depth number of hash rows (more rows lower the chance of a large over-count)
+     * @param width number of columns per row, must be a power of two
+     * @param buckets number of buckets the window is split into (one more is kept for the bucket in progress)
+     * @param bucketMillis duration of one bucket in milliseconds
+     * @throws IllegalArgumentException if any of the parameters is out of range
+     */
+    public SlidingWindowSketch(int depth, int width, int buckets, long bucketMillis)
+    {
+        this(depth, width, new int[] {buckets}, new long[] {bucketMillis});
+    }
+
+    /**
+     * Constructs an empty sketch tracking several windows over the same events. Window i is split into
+     * buckets[i] buckets of bucketMillis[i] milliseconds.
+     * @param depth number of hash rows (more rows lower the chance of a large over-count)
+     * @param width number of columns per row, must be a power of two
+     * @param buckets number of buckets of each window (one more is kept for the bucket in progress)
+     * @param bucketMillis duration of one bucket of each window in milliseconds
+     * @throws IllegalArgumentException if any of the parameters is out of range
+     */
+    public SlidingWindowSketch(int depth, int width, int[] buckets, long[] bucketMillis)
+    {
+        if(depth <= 0 || depth > 16)
+            throw new IllegalArgumentException("Depth must be between 1 and 16");
+        if(width <= 0 || Integer.bitCount(width) != 1)
+            throw new IllegalArgumentException("Width must be a power of two");
+        if(buckets.length == 0 || buckets.length != bucketMillis.length)
+            throw new IllegalArgumentException("Expected one bucket count and duration per window");
+
+        this.offsets = new int[buckets.length];
+        int cellSlots = 0;
+        for(int window = 0; window < buckets.length; window++)
+        {
+            if(buckets[window] <= 0 || buckets[window] > 1024 || bucketMillis[window] <= 0)
+                throw new IllegalArgumentException("Bucket count must be between 1 and 1024, duration positive");
+            offsets[window] = cellSlots;
+            cellSlots += buckets[window] + 1;
+        }
+        if((long) depth * width * cellSlots > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Sketch is too large");
+
+        this.depth = depth;
+        this.widthMask = width - 1;
+        this.buckets = buckets.clone();
+        this.bucketMillis = bucketMillis.clone();
+        this.slots = cellSlots;
+        this.cells = new AtomicLongArray(depth * width * cellSlots);
+    }
+
+    /**
+     * Estimates the number of events and the sum of the amounts added for the key during the (first) window
+     * ending at the given time.
+     * @param key hash of the key, see hash(String)
+     * @param nowMillis current time in milliseconds
+     * @return the packed estimate, see estimate(long, int, long)
+     */
+    public long estimate(long key, long nowMillis)
+    {
+        return estimate(key, 0, nowMillis);
+    }
+
+    /**
+     * Estimates the number of events and the sum of the amounts added for the key during a window ending at the
+     * given time. Both are returned packed in one long, see countOf and amountOf.
+     * @param key hash of the key, see hash(String)
+     * @param window index of the window, in the order given to the constructor
+     * @param nowMillis current time in milliseconds
+     * @return the packed estimate (neither part lower than the true value)
+     */
+    public long estimate(long key, int window, long nowMillis)
+    {
+        long epoch = nowMillis / bucketMillis[window];
+        int windowBuckets = buckets[window];
+        long minCount = Long.MAX_VALUE;
+        long minAmount = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++)
+        {
+            int base = cellBase(key, row) + offsets[window];
+            long count = 0;
+            long amount = 0;
+            for(int slot = 0; slot <= windowBuckets; slot++)
+            {
+                long cell = cells.get(base + slot);
+                // age of the bucket held by the slot, computed on the truncated epochs; buckets stamped in the
+                // future (clock set back) wrap around to a large age and are skipped as well
+                if(((epoch - (cell >>> EPOCH_SHIFT)) & EPOCH_MASK) <= windowBuckets)
+                {
+                    count += (cell >>> COUNT_SHIFT) & MAX_COUNT;
+                    amount += cell & MAX_AMOUNT;
+                }
+            }
+            minCount = Math.min(minCount, count);
+            minAmount = Math.min(minAmount, amount);
+        }
+        return (minCount << COUNT_SHIFT) | Math.min(minAmount, MAX_AMOUNT);
+    }
+
+    /**
+     * Event count part of an estimate.
+     * @param estimate as returned by estimate
+     * @return the estimated number of events
+     */
+    public static long countOf(long estimate)
+    {
+        return estimate >>> COUNT_SHIFT;
+    }
+
+    /**
+     * Amount part of an estimate. Sums above MAX_AMOUNT are returned as MAX_AMOUNT.
+     * @param estimate as returned by estimate
+     * @return the estimated sum of the amounts
+     */
+    public static long amountOf(long estimate)
+    {
+        return estimate & MAX_AMOUNT;
+    }
+
+    /**
+     * Adds events and their amount for the key to the current bucket of every window in every row.
+     * @param key hash of the key, see hash(String)
+     * @param count number of events to add, between 0 and MAX_COUNT
+     * @param amount to add, between 0 and MAX_AMOUNT
+     * @param nowMillis current time in milliseconds
+     * @throws IllegalArgumentException if the count or the amount is out of range
+     */
+    public void add(long key, long count, long amount, long nowMillis)
+    {
+        if(count < 0 || count > MAX_COUNT || amount < 0 || amount > MAX_AMOUNT)
+            throw new IllegalArgumentException("Count or amount out of range");
+
+        for(int row = 0; row < depth; row++)
+        {
+            int base = cellBase(key, row);
+            for(int window = 0; window < buckets.length; window++)
+            {
+                long epoch = nowMillis / bucketMillis[window];
+                int index = base + offsets[window] + (int) (epoch % (buckets[window] + 1));
+                long stamp = (epoch & EPOCH_MASK) << EPOCH_SHIFT;
+                long cell, updated;
+                do
+                {
+                    cell = cells.get(index);
+                    // a bucket left over from an older window starts again from zero
+                    long current = ((cell >>> EPOCH_SHIFT) == (epoch & EPOCH_MASK)) ? cell : 0;
+                    updated = stamp
+                              | Math.min(((current >>> COUNT_SHIFT) & MAX_COUNT) + count, MAX_COUNT) << COUNT_SHIFT
+                              | Math.min((current & MAX_AMOUNT) + amount, MAX_AMOUNT);
+                } while(updated != cell && !cells.compareAndSet(index, cell, updated));
+            }
+        }
+    }
+
+    /**
+     * Empties every bucket, as if nothing had been added. Not atomic with respect to concurrent updates.
+     */
+    public void clear()
+    {
+        for(int i = 0; i < cells.length(); i++)
+            cells.set(i, 0);
+    }
+
+    /**
+     * Memory used by the cells of the sketch.
+     * @return the size of the cells in bytes
+     */
+    public long getMemoryBytes()
+    {
+        return 8L * cells.length();
+    }
+
+    /**
+     * Hashes a string key to 64 bits. The result is meant to be computed once per operation and passed to
+     * estimate and add. The hash is computed from the characters rather than from String.hashCode(), whose 32 bits
+     * would put keys with equal hash codes (such as "Aa" and "BB") in the same cell of every row.
+     * @param key to hash
+     * @return the 64-bit hash of the key
+     */
+    public static long hash(String key)
+    {
+        // FNV-1a over the UTF-16 characters, followed by the murmur3 finalizer to spread the low bits
+        long h = 0xCBF29CE484222325L;
+        for(int i = 0; i < key.length(); i++)
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Index of the first bucket of the key's cell in the given row. Rows use double hashing on the two halves
+     * of the key hash.
+     */
+    private int cellBase(long key, int row)
+    {
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        int column = (h1 + row * h2) & widthMask;
+        return (row * (widthMask + 1) + column) * slots;
+    }
+}
@@ -0,0 +1,14 @@
+package mybank;
+
+public class VelocityLimitExceededException extends RuntimeException
+{
+    /**
+     * Thrown when a withdrawal or a passcode attempt would exceed one of the rolling velocity limits of the
+     * account type.
+     * @param limit description of the exceeded limit
+     */
+    public VelocityLimitExceededException(String limit)
+    {
+        super("Limit exceeded: " + limit);
+    }
+}
@@ -0,0 +1,195 @@
+package mybank;
+
+/**
+ * Fraud and limit checks on withdrawals and passcode attempts. The limiter tracks, per account name, the amount
+ * and number of withdrawals over the last hour and day and the failed passcode attempts over the last hour.
+ * The counts live in SlidingWindowSketch instances shared by all accounts, so no object or lock is added per
+ * account and the memory use is fixed when the limiter is built, however many accounts become active.
+ *
+ * Withdrawals are kept in one sketch tracking both the hourly and the daily window, whose buckets hold both the
+ * number of withdrawals and their amount. A withdrawal check therefore touches one cell per row, and recording
+ * it updates two buckets of that cell. The memory use is about 8 * depth * width * (7 + 9 + 7 / 8) bytes.
+ *
+ * The width is a deliberate trade of memory against accuracy. Exact per-account windows would take about 200
+ * bytes per active account (the same 23 buckets plus a map entry). The sketch is only worth it when it is
+ * narrower than that, which means accounts share cells: each row of a check over-counts by about the number of
+ * events of the window divided by the width, and the check takes the lowest row. widthFor(int) sizes the
+ * sketches at about a quarter of the accounts active within a day, about 100 bytes per account (106 MB at depth 3
+ * for a million accounts). At one or two withdrawals per account and day, a daily count then over-counts by a
+ * few withdrawals, and a daily amount by a few times the average amount withdrawn per account and day. Hourly
+ * windows hold a twenty-fourth of the events and over-count much less. A wider sketch lowers the over-count, but
+ * from about the number of active accounts up it is larger than exact counting.
+ *
+ * A check is a handful of reads and a 64-bit hash of the name. On a single-CPU virtual machine it costs about
+ * 0.2-0.3 us while the sketch and the names fit in the CPU caches (4000 accounts at width 8192) and 1-1.8 us
+ * once they do not, as every row is then a cache miss, whatever the width. These are microseconds rather than
+ * nanoseconds: see test/mybank/VelocityLimiterBenchmark.java.
+ *
+ * The sketches may over-count, never under-count, so a check can refuse an operation that was just under the
+ * limit but never lets one through that is over it. The hourly limits cover between 60 and 70 minutes and the
+ * daily limits between 24 and 27 hours. Limits are configured per AccountTypes value. Checks and updates are
+ * lock-free and may be called from several threads, although two withdrawals racing between their check and
+ * record calls on the same account can both pass.
+ */
+public class VelocityLimiter
+{
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private static final int HOUR = 0;
+    private static final int DAY = 1;
+
+    private final VelocityLimits[] limits;
+    private final SlidingWindowSketch withdrawals;
+    private final SlidingWindowSketch failedPasscodesPerHour;
+
+    /**
+     * Constructs a limiter with the default limits and sketches sized for about 30,000 accounts active within a
+     * day, see widthFor(int).
+     */
+    public VelocityLimiter()
+    {
+        this(3, 1 << 13);
+    }
+
+    /**
+     * Constructs a limiter with the default limits.
+     * @param depth number of hash rows of each sketch
+     * @param width number of columns of each sketch row, a power of two, see widthFor(int)
+     */
+    public VelocityLimiter(int depth, int width)
+    {
+        limits = new VelocityLimits[AccountTypes.values().length];
+        for(AccountTypes accountType : AccountTypes.values())
+            limits[accountType.ordinal()] = VelocityLimits.defaultsFor(accountType);
+
+        // hourly windows in 10-minute buckets, daily windows in 3-hour buckets: a cell of 7 + 9 longs fills two
+        // cache lines. Every check reads all the buckets of a cell, so finer buckets cost memory and time.
+        withdrawals = new SlidingWindowSketch(depth, width, new int[] {6, 8},
+                                              new long[] {10 * MINUTE_MILLIS, 3 * HOUR_MILLIS});
+        // only accounts given a wrong passcode are added, far fewer than the accounts withdrawing
+        failedPasscodesPerHour = new SlidingWindowSketch(depth, Math.max(width / 8, 64), 6, 10 * MINUTE_MILLIS);
+    }
+
+    /**
+     * Sketch width for the given number of accounts active within a day: the power of two at or above a quarter
+     * of them, which trades some over-counting for about half the memory of exact counting (see the class
+     * description).
+     * @param activeAccounts number of accounts expected to withdraw within a day
+     * @return the width to give to the constructor
+     */
+    public static int widthFor(int activeAccounts)
+    {
+        return Math.max(64, Integer.highestOneBit(Math.max(1, activeAccounts / 4 - 1)) << 1);
+    }
+
+    /**
+     * Replaces the limits of an account type.
+     * @param accountType type of the account (STANDARD or VIP)
+     * @param accountLimits new limits of the type
+     */
+    public void setLimits(AccountTypes accountType, VelocityLimits accountLimits)
+    {
+        limits[accountType.ordinal()] = accountLimits;
+    }
+
+    /**
+     * Obtain the limits of an account type.
+     * @param accountType type of the account (STANDARD or VIP)
+     * @return the limits of the type
+     */
+    public VelocityLimits getLimits(AccountTypes accountType)
+    {
+        return limits[accountType.ordinal()];
+    }
+
+    /**
+     * Forgets every withdrawal and failed passcode attempt recorded so far. The limits are kept.
+     */
+    public void clear()
+    {
+        withdrawals.clear();
+        failedPasscodesPerHour.clear();
+    }
+
+    /**
+     * Memory used by the sketches of the limiter.
+     * @return the size of the sketches in bytes
+     */
+    public long getMemoryBytes()
+    {
+        return withdrawals.getMemoryBytes() + failedPasscodesPerHour.getMemoryBytes();
+    }
+
+    /**
+     * Verifies that the account is not locked by too many failed passcode attempts. To be called before the
+     * passcode is checked.
+     * @param name of the account
+     * @param accountType type of the account
+     * @param nowMillis current time in milliseconds
+     * @throws VelocityLimitExceededException if the account reached its failed passcode limit
+     */
+    public void checkPasscodeAttempts(String name, AccountTypes accountType, long nowMillis)
+            throws VelocityLimitExceededException
+    {
+        long failed = failedPasscodesPerHour.estimate(SlidingWindowSketch.hash(name), nowMillis);
+        if(SlidingWindowSketch.countOf(failed) >= limits[accountType.ordinal()].getMaxFailedPasscodesPerHour())
+            throw new VelocityLimitExceededException("too many failed passcode attempts, try again later");
+    }
+
+    /**
+     * Counts a failed passcode attempt against the account.
+     * @param name of the account
+     * @param nowMillis current time in milliseconds
+     */
+    public void recordFailedPasscode(String name, long nowMillis)
+    {
+        failedPasscodesPerHour.add(SlidingWindowSketch.hash(name), 1, 0, nowMillis);
+    }
+
+    /**
+     * Verifies that withdrawing the given amount keeps the account within its hourly and daily limits. The
+     * withdrawal is not counted until recordWithdrawal is called, so that one refused for another reason (such
+     * as the balance) does not count.
+     * @param name of the account
+     * @param accountType type of the account
+     * @param amount to withdraw
+     * @param nowMillis current time in milliseconds
+     * @throws VelocityLimitExceededException if one of the limits would be exceeded
+     */
+    public void checkWithdrawal(String name, AccountTypes accountType, double amount, long nowMillis)
+            throws VelocityLimitExceededException
+    {
+        VelocityLimits accountLimits = limits[accountType.ordinal()];
+        long key = SlidingWindowSketch.hash(name);
+        // above any limit short of UNLIMITED, and small enough that the comparisons below cannot overflow
+        long cents = Math.min(VelocityLimits.toCents(amount), SlidingWindowSketch.MAX_AMOUNT + 1);
+        long hour = withdrawals.estimate(key, HOUR, nowMillis);
+        long day = withdrawals.estimate(key, DAY, nowMillis);
+
+        if(SlidingWindowSketch.countOf(hour) + 1 > accountLimits.getMaxWithdrawalsPerHour())
+            throw new VelocityLimitExceededException("withdrawals per hour");
+        if(SlidingWindowSketch.countOf(day) + 1 > accountLimits.getMaxWithdrawalsPerDay())
+            throw new VelocityLimitExceededException("withdrawals per day");
+        // compared against the room left rather than the sum, so that an UNLIMITED limit cannot overflow
+        if(cents > accountLimits.getMaxCentsPerHour() - SlidingWindowSketch.amountOf(hour))
+            throw new VelocityLimitExceededException("amount withdrawn per hour");
+        if(cents > accountLimits.getMaxCentsPerDay() - SlidingWindowSketch.amountOf(day))
+            throw new VelocityLimitExceededException("amount withdrawn per day");
+    }
+
+    /**
+     * Counts a completed withdrawal against the account. Only the current hourly and daily buckets of each row
+     * are updated, the rest of the windows is not read again.
+     * @param name of the account
+     * @param amount withdrawn
+     * @param nowMillis current time in milliseconds
+     */
+    public void recordWithdrawal(String name, double amount, long nowMillis)
+    {
+        long key = SlidingWindowSketch.hash(name);
+        long cents = Math.min(Math.max(0, VelocityLimits.toCents(amount)), SlidingWindowSketch.MAX_AMOUNT);
+
+        withdrawals.add(key, 1, cents, nowMillis);
+    }
+}
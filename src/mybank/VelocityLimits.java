@@ -0,0 +1,116 @@
+package mybank;
+
+/**
+ * Rolling limits applied by the VelocityLimiter to the accounts of one AccountTypes value. Amounts are given in
+ * dollars and kept in cents, like the balances displayed by the accounts.
+ */
+public class VelocityLimits
+{
+    /**
+     * Value of a limit that is evaluated like any other but that no count or amount can reach, see unlimited().
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long maxCentsPerHour;
+    private final long maxCentsPerDay;
+    private final long maxWithdrawalsPerHour;
+    private final long maxWithdrawalsPerDay;
+    private final long maxFailedPasscodesPerHour;
+
+    /**
+     * Constructs a set of limits.
+     * @param maxAmountPerHour largest total withdrawn over the last hour
+     * @param maxAmountPerDay largest total withdrawn over the last day
+     * @param maxWithdrawalsPerHour largest number of withdrawals over the last hour
+     * @param maxWithdrawalsPerDay largest number of withdrawals over the last day
+     * @param maxFailedPasscodesPerHour number of wrong passcodes over the last hour after which the account is
+     *                                  locked until the older attempts leave the window
+     * @throws IllegalArgumentException if any of the limits is negative or above what the sketches can hold
+     * (SlidingWindowSketch.MAX_COUNT events, just under SlidingWindowSketch.MAX_AMOUNT cents)
+     */
+    public VelocityLimits(double maxAmountPerHour, double maxAmountPerDay, long maxWithdrawalsPerHour,
+                          long maxWithdrawalsPerDay, long maxFailedPasscodesPerHour)
+    {
+        if(maxAmountPerHour < 0 || maxAmountPerDay < 0 || maxWithdrawalsPerHour < 0 || maxWithdrawalsPerDay < 0
+           || maxFailedPasscodesPerHour < 0)
+            throw new IllegalArgumentException("Limits must not be negative");
+        if(maxWithdrawalsPerHour > SlidingWindowSketch.MAX_COUNT || maxWithdrawalsPerDay > SlidingWindowSketch.MAX_COUNT
+           || maxFailedPasscodesPerHour > SlidingWindowSketch.MAX_COUNT
+           || toCents(maxAmountPerHour) >= SlidingWindowSketch.MAX_AMOUNT
+           || toCents(maxAmountPerDay) >= SlidingWindowSketch.MAX_AMOUNT)
+            throw new IllegalArgumentException("Limits are too large");
+
+        this.maxCentsPerHour = toCents(maxAmountPerHour);
+        this.maxCentsPerDay = toCents(maxAmountPerDay);
+        this.maxWithdrawalsPerHour = maxWithdrawalsPerHour;
+        this.maxWithdrawalsPerDay = maxWithdrawalsPerDay;
+        this.maxFailedPasscodesPerHour = maxFailedPasscodesPerHour;
+    }
+
+    /**
+     * Limits that never refuse anything. The checks still run in full, so a limiter using them costs the same
+     * as one with real limits, which is what the load test measures.
+     * @return limits set to UNLIMITED
+     */
+    public static VelocityLimits unlimited()
+    {
+        return new VelocityLimits();
+    }
+
+    private VelocityLimits()
+    {
+        this.maxCentsPerHour = UNLIMITED;
+        this.maxCentsPerDay = UNLIMITED;
+        this.maxWithdrawalsPerHour = UNLIMITED;
+        this.maxWithdrawalsPerDay = UNLIMITED;
+        this.maxFailedPasscodesPerHour = UNLIMITED;
+    }
+
+    /**
+     * Default limits of the given account type. VIP accounts get higher limits than standard accounts.
+     * @param accountType type of the account (STANDARD or VIP)
+     * @return the default limits
+     */
+    public static VelocityLimits defaultsFor(AccountTypes accountType)
+    {
+        if(accountType == AccountTypes.VIP)
+            return new VelocityLimits(5000, 20000, 20, 100, 5);
+        else
+            return new VelocityLimits(1000, 2500, 10, 30, 3);
+    }
+
+    /**
+     * Rounds a dollar amount to the nearest cent.
+     * @param amount in dollars
+     * @return amount in cents
+     */
+    static long toCents(double amount)
+    {
+        return Math.round(amount * 100.0);
+    }
+
+    public long getMaxCentsPerHour()
+    {
+        return maxCentsPerHour;
+    }
+
+    public long getMaxCentsPerDay()
+    {
+        return maxCentsPerDay;
+    }
+
+    public long getMaxWithdrawalsPerHour()
+    {
+        return maxWithdrawalsPerHour;
+    }
+
+    public long getMaxWithdrawalsPerDay()
+    {
+        return maxWithdrawalsPerDay;
+    }
+
+    public long getMaxFailedPasscodesPerHour()
+    {
+        return maxFailedPasscodesPerHour;
+    }
+}
@@ -0,0 +1,258 @@
+package mybank;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generator of banking operations used by the load test harness. The generator mirrors the menu
+ * operations of BankSystem and picks the targeted account from a Zipf distribution so that a small number of
+ * "hot" accounts receive most of the traffic. Two generators built with the same parameters and seed always
+ * produce the same sequence of operations, which keeps load test runs comparable.
+ */
+public class WorkloadGenerator
+{
+    /**
+     * The operations offered by the main menu of BankSystem (exit excluded).
+     */
+    public enum Operation
+    {
+        CREATE("create"),
+        DISPLAY("display"),
+        WITHDRAW("withdraw"),
+        DEPOSIT("deposit"),
+        DISPLAY_ALL("displayAll"),
+        REMOVE("remove"),
+        INTEREST("interest");
+
+        private final String description;
+
+        Operation(String description)
+        {
+            this.description = description;
+        }
+
+        @Override
+        public String toString()
+        {
+            return description;
+        }
+    }
+
+    /**
+     * A single generated request. The fields are reused between calls to next() to avoid allocating on every
+     * operation, so callers must copy anything they want to keep.
+     */
+    public static class Request
+    {
+        Operation operation;
+        int accountIndex;
+        String name;
+        String passcode;
+        AccountTypes accountType;
+        boolean correctPasscode;
+        double amount;
+        int months;
+
+        public Operation getOperation()
+        {
+            return operation;
+        }
+
+        public int getAccountIndex()
+        {
+            return accountIndex;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * The passcode given with the request: the account's own passcode, or a wrong one when
+         * isCorrectPasscode() is false.
+         */
+        public String getPasscode()
+        {
+            return passcode;
+        }
+
+        public AccountTypes getAccountType()
+        {
+            return accountType;
+        }
+
+        public boolean isCorrectPasscode()
+        {
+            return correctPasscode;
+        }
+
+        public double getAmount()
+        {
+            return amount;
+        }
+
+        public int getMonths()
+        {
+            return months;
+        }
+    }
+
+    // Operation.values() clones the array on every call, so it is read once here for next()
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final SplittableRandom random;
+    private final double[] operationCdf;
+    private final double[] accountCdf;
+    private final double vipRatio;
+    private final double wrongPasscodeRatio;
+    private final double maxAmount;
+    private final Request request;
+    // built once so that no string is formatted while a request is being timed
+    private final String[] names;
+    private final String[] passcodes;
+    private final String[] wrongPasscodes;
+
+    /**
+     * Constructs a generator.
+     * @param seed of the random sequence
+     * @param accountCount number of distinct account names in the key space
+     * @param zipfExponent skew of the account distribution (0 is uniform, larger values make hot accounts hotter)
+     * @param operationWeights relative weight of each Operation, indexed by ordinal
+     * @param vipRatio fraction of created accounts that are VIP accounts
+     * @param wrongPasscodeRatio fraction of withdrawals and removals that give the wrong passcode
+     * @param maxAmount upper bound of the generated deposit and withdrawal amounts
+     * @throws IllegalArgumentException if any of the parameters is out of range
+     */
+    public WorkloadGenerator(long seed, int accountCount, double zipfExponent, double[] operationWeights,
+                             double vipRatio, double wrongPasscodeRatio, double maxAmount)
+    {
+        if(accountCount <= 0)
+            throw new IllegalArgumentException("Account count must be positive");
+        if(zipfExponent < 0)
+            throw new IllegalArgumentException("Zipf exponent must not be negative");
+        if(operationWeights.length != Operation.values().length)
+            throw new IllegalArgumentException("Expected " + Operation.values().length + " operation weights");
+        if(vipRatio < 0 || vipRatio > 1 || wrongPasscodeRatio < 0 || wrongPasscodeRatio > 1)
+            throw new IllegalArgumentException("Ratios must be between 0 and 1");
+        if(maxAmount <= 0)
+            throw new IllegalArgumentException("Maximum amount must be positive");
+
+        this.random = new SplittableRandom(seed);
+        this.operationCdf = cumulative(operationWeights);
+        this.accountCdf = zipfCdf(accountCount, zipfExponent);
+        this.vipRatio = vipRatio;
+        this.wrongPasscodeRatio = wrongPasscodeRatio;
+        this.maxAmount = maxAmount;
+        this.request = new Request();
+
+        this.names = new String[accountCount];
+        this.passcodes = new String[accountCount];
+        this.wrongPasscodes = new String[accountCount];
+        for(int i = 0; i < accountCount; i++)
+        {
+            names[i] = "account-" + i;
+            passcodes[i] = String.format("%04d", i % 10000);
+            wrongPasscodes[i] = String.format("%04d", (i + 1) % 10000);
+        }
+    }
+
+    /**
+     * Generates the next request of the sequence.
+     * @return the (reused) request object filled with the next operation
+     */
+    public Request next()
+    {
+        request.operation = OPERATIONS[sample(operationCdf)];
+        request.accountIndex = sample(accountCdf);
+        request.name = names[request.accountIndex];
+        request.accountType = accountTypeOf(request.accountIndex);
+        request.correctPasscode = random.nextDouble() >= wrongPasscodeRatio;
+        request.passcode = request.correctPasscode
+                ? passcodes[request.accountIndex] : wrongPasscodes[request.accountIndex];
+        // amounts are whole cents, like the balances displayed by the accounts
+        request.amount = Math.round(random.nextDouble(maxAmount) * 100.0) / 100.0;
+        request.months = 1 + random.nextInt(36);
+        return request;
+    }
+
+    /**
+     * Number of distinct account names in the key space.
+     * @return the account count
+     */
+    public int getAccountCount()
+    {
+        return accountCdf.length;
+    }
+
+    /**
+     * The account type is a fixed function of the account index so that an account keeps its type when it is
+     * removed and created again. Indices are scattered with a multiplicative hash so that the VIP accounts are
+     * spread over hot and cold accounts alike.
+     * @param accountIndex index of the account in the key space
+     * @return the type of the account
+     */
+    public AccountTypes accountTypeOf(int accountIndex)
+    {
+        long mixed = (accountIndex * 0x9E3779B97F4A7C15L) >>> 11;
+        return (mixed * 0x1.0p-53 < vipRatio) ? AccountTypes.VIP : AccountTypes.STANDARD;
+    }
+
+    /**
+     * Name of the account at the given index.
+     * @param accountIndex index of the account in the key space
+     * @return name of the account
+     */
+    public String nameOf(int accountIndex)
+    {
+        return names[accountIndex];
+    }
+
+    /**
+     * Passcode of the account at the given index. Always a valid 4-digit passcode.
+     * @param accountIndex index of the account in the key space
+     * @return passcode of the account
+     */
+    public String passcodeOf(int accountIndex)
+    {
+        return passcodes[accountIndex];
+    }
+
+    /**
+     * Draws an index from a cumulative distribution.
+     * @param cdf cumulative distribution whose last entry is 1
+     * @return the drawn index
+     */
+    private int sample(double[] cdf)
+    {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        index = (index < 0) ? -index - 1 : index + 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static double[] cumulative(double[] weights)
+    {
+        double[] cdf = new double[weights.length];
+        double total = 0;
+        for(int i = 0; i < weights.length; i++)
+        {
+            if(weights[i] < 0)
+                throw new IllegalArgumentException("Operation weights must not be negative");
+            total += weights[i];
+            cdf[i] = total;
+        }
+        if(total <= 0)
+            throw new IllegalArgumentException("At least one operation weight must be positive");
+        for(int i = 0; i < cdf.length; i++)
+            cdf[i] /= total;
+        return cdf;
+    }
+
+    private static double[] zipfCdf(int count, double exponent)
+    {
+        double[] weights = new double[count];
+        for(int rank = 0; rank < count; rank++)
+            weights[rank] = 1.0 / Math.pow(rank + 1, exponent);
+        return cumulative(weights);
+    }
+}
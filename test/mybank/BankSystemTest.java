@@ -0,0 +1,89 @@
+package mybank;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Checks of how BankSystem applies the VelocityLimiter to its operations, on a clock the checks move by hand.
+ * The project has no test framework, so the checks run from main and throw an AssertionError on the first
+ * failure.
+ */
+public class BankSystemTest
+{
+    private static final long MINUTE_MILLIS = 60_000L;
+    // midnight UTC, aligned with every bucket duration of the limiter
+    private static final long MIDNIGHT = 1_760_054_400_000L;
+
+    private static long now;
+
+    public static void main(String[] args)
+    {
+        withdrawalRefusedForBalanceIsNotCounted();
+        failedPasscodesLockRemoval();
+        System.out.println("BankSystemTest passed");
+    }
+
+    /**
+     * A withdrawal over the balance must not use up the hourly amount, so the full hourly amount can still be
+     * withdrawn once the account has the money.
+     */
+    private static void withdrawalRefusedForBalanceIsNotCounted()
+    {
+        BankSystem bank = newBank();
+        bank.createAccount(AccountTypes.STANDARD, "bob", "1234", 100);
+
+        expectThrown(WithdrawalAmountException.class, () -> bank.withdrawFromAccount("bob", "1234", 900),
+                     "withdrawal over the balance");
+        bank.depositToAccount("bob", 2000);
+        bank.withdrawFromAccount("bob", "1234", 1000);
+        expectThrown(VelocityLimitExceededException.class, () -> bank.withdrawFromAccount("bob", "1234", 0.01),
+                     "withdrawal over the hourly amount");
+    }
+
+    /**
+     * Three wrong passcodes lock the account: even the right passcode cannot remove it until the attempts have
+     * left the hourly window.
+     */
+    private static void failedPasscodesLockRemoval()
+    {
+        BankSystem bank = newBank();
+        bank.createAccount(AccountTypes.STANDARD, "bob", "1234", 100);
+        for(int i = 0; i < 3; i++)
+        {
+            expectThrown(WrongPasscodeWhenFindingException.class, () -> bank.withdrawFromAccount("bob", "0000", 1),
+                         "withdrawal with a wrong passcode");
+        }
+
+        expectThrown(VelocityLimitExceededException.class, () -> bank.removeAccount("bob", "1234"),
+                     "removal of a locked account");
+        bank.displayAccount("bob");
+
+        now += 70 * MINUTE_MILLIS;
+        bank.removeAccount("bob", "1234");
+        expectThrown(AccountDoesNotExistException.class, () -> bank.displayAccount("bob"), "display after removal");
+    }
+
+    private static BankSystem newBank()
+    {
+        now = MIDNIGHT;
+        return new BankSystem(InputStream.nullInputStream(), new PrintStream(OutputStream.nullOutputStream()),
+                              new VelocityLimiter(3, 1024), () -> now);
+    }
+
+    private static void expectThrown(Class<? extends RuntimeException> expected, Runnable operation,
+                                     String description)
+    {
+        try
+        {
+            operation.run();
+        }
+        catch(RuntimeException except)
+        {
+            if(expected.isInstance(except))
+                return;
+            throw new AssertionError(description + " threw " + except.getClass().getSimpleName(), except);
+        }
+        throw new AssertionError(description + " did not throw " + expected.getSimpleName());
+    }
+}
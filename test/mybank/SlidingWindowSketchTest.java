@@ -0,0 +1,125 @@
+package mybank;
+
+/**
+ * Checks of the SlidingWindowSketch window boundaries. The project has no test framework, so the checks run from
+ * main and throw an AssertionError on the first failure.
+ */
+public class SlidingWindowSketchTest
+{
+    private static final long MINUTE_MILLIS = 60_000L;
+    // midnight UTC, aligned with every bucket duration used below
+    private static final long MIDNIGHT = 1_760_054_400_000L;
+
+    public static void main(String[] args)
+    {
+        amountIsKeptForTheWholeWindow();
+        amountExpiresAfterTheExtraBucket();
+        keysDoNotShareCountsWithoutCollisions();
+        bucketsSaturateInsteadOfOverflowing();
+        windowsOfOneSketchExpireSeparately();
+        equalStringHashCodesDoNotShareCounts();
+        System.out.println("SlidingWindowSketchTest passed");
+    }
+
+    /**
+     * An amount added at the very end of a bucket must still count one full window later.
+     */
+    private static void amountIsKeptForTheWholeWindow()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 6, 10 * MINUTE_MILLIS);
+        long key = SlidingWindowSketch.hash("bob");
+        long added = MIDNIGHT + 9 * MINUTE_MILLIS + 59_999;
+
+        sketch.add(key, 1, 10, added);
+        check(amount(sketch, key, added) == 10 && count(sketch, key, added) == 1, "amount counted when added");
+        check(amount(sketch, key, added + 60 * MINUTE_MILLIS) == 10, "amount counted one window later");
+    }
+
+    /**
+     * Once the bucket of an amount is older than the window plus the bucket in progress, it no longer counts.
+     */
+    private static void amountExpiresAfterTheExtraBucket()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 6, 10 * MINUTE_MILLIS);
+        long key = SlidingWindowSketch.hash("bob");
+
+        sketch.add(key, 1, 10, MIDNIGHT);
+        sketch.add(key, 1, 5, MIDNIGHT + 10 * MINUTE_MILLIS);
+        check(amount(sketch, key, MIDNIGHT + 69 * MINUTE_MILLIS) == 15, "both buckets counted at 01:09");
+        check(amount(sketch, key, MIDNIGHT + 70 * MINUTE_MILLIS) == 5, "first bucket expired at 01:10");
+        check(amount(sketch, key, MIDNIGHT + 80 * MINUTE_MILLIS) == 0, "second bucket expired at 01:20");
+
+        // the slot of the expired bucket is reused without carrying its old count
+        sketch.add(key, 1, 1, MIDNIGHT + 70 * MINUTE_MILLIS);
+        check(amount(sketch, key, MIDNIGHT + 70 * MINUTE_MILLIS) == 6 && count(sketch, key, MIDNIGHT + 70 * MINUTE_MILLIS) == 2,
+              "reused slot starts from zero");
+    }
+
+    private static void keysDoNotShareCountsWithoutCollisions()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 6, 10 * MINUTE_MILLIS);
+        sketch.add(SlidingWindowSketch.hash("bob"), 1, 10, MIDNIGHT);
+        check(sketch.estimate(SlidingWindowSketch.hash("alice"), MIDNIGHT) == 0, "other key unaffected");
+    }
+
+    /**
+     * A full bucket must stay at its maximum so that the limits below it keep refusing.
+     */
+    private static void bucketsSaturateInsteadOfOverflowing()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(4, 1024, 6, 10 * MINUTE_MILLIS);
+        long key = SlidingWindowSketch.hash("bob");
+        sketch.add(key, SlidingWindowSketch.MAX_COUNT, SlidingWindowSketch.MAX_AMOUNT, MIDNIGHT);
+        sketch.add(key, 1, 1, MIDNIGHT);
+
+        check(count(sketch, key, MIDNIGHT) == SlidingWindowSketch.MAX_COUNT, "count saturated");
+        check(amount(sketch, key, MIDNIGHT) == SlidingWindowSketch.MAX_AMOUNT, "amount saturated");
+    }
+
+    /**
+     * An event added to a sketch with an hourly and a daily window counts in both, and leaves the hourly window
+     * while it is still in the daily one.
+     */
+    private static void windowsOfOneSketchExpireSeparately()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(3, 1024, new int[] {6, 4},
+                                                             new long[] {10 * MINUTE_MILLIS, 360 * MINUTE_MILLIS});
+        long key = SlidingWindowSketch.hash("bob");
+
+        sketch.add(key, 1, 10, MIDNIGHT);
+        check(SlidingWindowSketch.amountOf(sketch.estimate(key, 0, MIDNIGHT)) == 10, "counted in the hourly window");
+        check(SlidingWindowSketch.amountOf(sketch.estimate(key, 1, MIDNIGHT)) == 10, "counted in the daily window");
+        check(SlidingWindowSketch.amountOf(sketch.estimate(key, 0, MIDNIGHT + 70 * MINUTE_MILLIS)) == 0,
+              "expired from the hourly window at 01:10");
+        check(SlidingWindowSketch.amountOf(sketch.estimate(key, 1, MIDNIGHT + 70 * MINUTE_MILLIS)) == 10,
+              "still in the daily window at 01:10");
+        check(sketch.getMemoryBytes() == 8L * 3 * 1024 * (7 + 5), "buckets of both windows allocated");
+    }
+
+    /**
+     * "Aa" and "BB" have the same String.hashCode(), but must still land in different cells.
+     */
+    private static void equalStringHashCodesDoNotShareCounts()
+    {
+        SlidingWindowSketch sketch = new SlidingWindowSketch(3, 1024, 6, 10 * MINUTE_MILLIS);
+        sketch.add(SlidingWindowSketch.hash("Aa"), 3, 0, MIDNIGHT);
+        check(count(sketch, SlidingWindowSketch.hash("Aa"), MIDNIGHT) == 3, "counted for Aa");
+        check(count(sketch, SlidingWindowSketch.hash("BB"), MIDNIGHT) == 0, "not counted for BB");
+    }
+
+    private static long count(SlidingWindowSketch sketch, long key, long nowMillis)
+    {
+        return SlidingWindowSketch.countOf(sketch.estimate(key, nowMillis));
+    }
+
+    private static long amount(SlidingWindowSketch sketch, long key, long nowMillis)
+    {
+        return SlidingWindowSketch.amountOf(sketch.estimate(key, nowMillis));
+    }
+
+    static void check(boolean condition, String description)
+    {
+        if(!condition)
+            throw new AssertionError(description);
+    }
+}
@@ -0,0 +1,89 @@
+package mybank;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Micro-benchmark of the VelocityLimiter hot path: the cost of a withdrawal check, of recording a withdrawal and
+ * of a passcode attempt check, with accounts drawn uniformly from a large population so that most sketch cells
+ * are not in the CPU caches. The limits are VelocityLimits.unlimited() so that no check throws.
+ *
+ * Usage: java mybank.VelocityLimiterBenchmark [--accounts=1000000] [--depth=3] [--width=262144]
+ *        [--operations=5000000] [--rounds=5] [--seed=42]
+ * The width defaults to VelocityLimiter.widthFor(accounts).
+ */
+public class VelocityLimiterBenchmark
+{
+    public static void main(String[] args)
+    {
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if(!arg.startsWith("--") || equals < 0)
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000000"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "3"));
+        int width = Integer.parseInt(options.getOrDefault("width",
+                Integer.toString(VelocityLimiter.widthFor(accounts))));
+        int operations = Integer.parseInt(options.getOrDefault("operations", "5000000"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        SplittableRandom random = new SplittableRandom(Long.parseLong(options.getOrDefault("seed", "42")));
+
+        String[] names = new String[accounts];
+        for(int i = 0; i < accounts; i++)
+        {
+            names[i] = "account-" + i;
+            names[i].hashCode();        // cached by the String, as for the names kept in the accounts map
+        }
+        int[] order = new int[1 << 20];
+        for(int i = 0; i < order.length; i++)
+            order[i] = random.nextInt(accounts);
+
+        VelocityLimiter limiter = new VelocityLimiter(depth, width);
+        for(AccountTypes accountType : AccountTypes.values())
+            limiter.setLimits(accountType, VelocityLimits.unlimited());
+
+        System.out.printf("accounts=%d depth=%d width=%d sketch memory=%.1f MB%n", accounts, depth, width,
+                          limiter.getMemoryBytes() / 1e6);
+
+        long now = 1_760_054_400_000L;
+        int mask = order.length - 1;
+        long sink = 0;
+        for(int round = 1; round <= rounds; round++)
+        {
+            // baseline: fetching the name of a random account, which every other loop pays as well
+            long start = System.nanoTime();
+            for(int i = 0; i < operations; i++)
+                sink += names[order[(i + 3 * round) & mask]].hashCode();
+            long baseline = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < operations; i++)
+                limiter.recordWithdrawal(names[order[i & mask]], 12.34, now + i);
+            long record = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < operations; i++)
+                limiter.checkWithdrawal(names[order[(i + round) & mask]], AccountTypes.STANDARD, 12.34, now + i);
+            long check = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < operations; i++)
+                limiter.checkPasscodeAttempts(names[order[(i + 2 * round) & mask]], AccountTypes.STANDARD, now + i);
+            long passcode = System.nanoTime() - start;
+
+            System.out.printf("round %d: baseline %.1f ns, checkWithdrawal %.1f ns, recordWithdrawal %.1f ns, "
+                              + "checkPasscodeAttempts %.1f ns%n", round, (double) baseline / operations,
+                              (double) check / operations, (double) record / operations,
+                              (double) passcode / operations);
+            now += operations;
+        }
+        if(sink == 42)
+            System.out.println();       // keeps the baseline loop from being optimized away
+    }
+}
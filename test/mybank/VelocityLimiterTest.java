@@ -0,0 +1,121 @@
+package mybank;
+
+/**
+ * Checks of the VelocityLimiter limits at the boundaries of their rolling windows. The project has no test
+ * framework, so the checks run from main and throw an AssertionError on the first failure.
+ */
+public class VelocityLimiterTest
+{
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    // midnight UTC, aligned with every bucket duration of the limiter
+    private static final long MIDNIGHT = 1_760_054_400_000L;
+
+    public static void main(String[] args)
+    {
+        hourlyCountHoldsForAFullHour();
+        dailyAmountHoldsForAFullDay();
+        failedPasscodesLockTheAccount();
+        hugeAmountsAreRefused();
+        unlimitedLimitsNeverRefuse();
+        System.out.println("VelocityLimiterTest passed");
+    }
+
+    /**
+     * Ten withdrawals at 00:09 use up the standard hourly count, so an eleventh one at 01:00 must be refused.
+     */
+    private static void hourlyCountHoldsForAFullHour()
+    {
+        VelocityLimiter limiter = new VelocityLimiter(3, 1024);
+        long first = MIDNIGHT + 9 * MINUTE_MILLIS;
+        for(int i = 0; i < 10; i++)
+        {
+            limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1, first);
+            limiter.recordWithdrawal("bob", 1, first);
+        }
+
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1, first + 51 * MINUTE_MILLIS),
+                      "eleventh withdrawal at 01:00");
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1, first + HOUR_MILLIS),
+                      "eleventh withdrawal at 01:09");
+        // the same count is still under the VIP limit
+        limiter.checkWithdrawal("bob", AccountTypes.VIP, 1, first + 51 * MINUTE_MILLIS);
+    }
+
+    /**
+     * A standard account withdrawing its whole daily amount at 02:59 must be refused until 02:59 the next day.
+     */
+    private static void dailyAmountHoldsForAFullDay()
+    {
+        VelocityLimiter limiter = new VelocityLimiter(3, 1024);
+        long first = MIDNIGHT + 2 * HOUR_MILLIS + 59 * MINUTE_MILLIS;
+        // spread over three hours so that the hourly amount limit does not refuse it first
+        for(int i = 0; i < 3; i++)
+            limiter.recordWithdrawal("bob", 2500.0 / 3, first - i * HOUR_MILLIS);
+
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1, MIDNIGHT + 24 * HOUR_MILLIS),
+                      "withdrawal at 24:00");
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1, first + 24 * HOUR_MILLIS - 1),
+                      "withdrawal just before 26:59");
+    }
+
+    private static void failedPasscodesLockTheAccount()
+    {
+        VelocityLimiter limiter = new VelocityLimiter(3, 1024);
+        for(int i = 0; i < 3; i++)
+        {
+            limiter.checkPasscodeAttempts("bob", AccountTypes.STANDARD, MIDNIGHT);
+            limiter.recordFailedPasscode("bob", MIDNIGHT);
+        }
+
+        expectRefused(() -> limiter.checkPasscodeAttempts("bob", AccountTypes.STANDARD, MIDNIGHT + HOUR_MILLIS - 1),
+                      "fourth passcode attempt within the hour");
+        limiter.checkPasscodeAttempts("alice", AccountTypes.STANDARD, MIDNIGHT);
+    }
+
+    /**
+     * Amounts whose cents do not fit in a long must be refused, not wrap around to a sum under the limit.
+     */
+    private static void hugeAmountsAreRefused()
+    {
+        VelocityLimiter limiter = new VelocityLimiter(3, 1024);
+        limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 0.01, MIDNIGHT);
+        limiter.recordWithdrawal("bob", 0.01, MIDNIGHT);
+
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 9.3e16, MIDNIGHT),
+                      "withdrawal of 9.3e16 after one of 0.01");
+        expectRefused(() -> limiter.checkWithdrawal("alice", AccountTypes.STANDARD, 1e300, MIDNIGHT),
+                      "withdrawal of 1e300");
+    }
+
+    /**
+     * Buckets saturated on both counts and amounts must not trip unlimited limits, whatever the amount.
+     */
+    private static void unlimitedLimitsNeverRefuse()
+    {
+        VelocityLimiter limiter = new VelocityLimiter(3, 1024);
+        limiter.setLimits(AccountTypes.STANDARD, VelocityLimits.unlimited());
+        for(int i = 0; i < 2 * SlidingWindowSketch.MAX_COUNT; i++)
+        {
+            limiter.recordWithdrawal("bob", 1e9, MIDNIGHT);
+            limiter.recordFailedPasscode("bob", MIDNIGHT);
+        }
+
+        limiter.checkWithdrawal("bob", AccountTypes.STANDARD, 1e300, MIDNIGHT);
+        limiter.checkPasscodeAttempts("bob", AccountTypes.STANDARD, MIDNIGHT);
+        expectRefused(() -> limiter.checkWithdrawal("bob", AccountTypes.VIP, 1, MIDNIGHT), "VIP withdrawal");
+    }
+
+    private static void expectRefused(Runnable check, String description)
+    {
+        try
+        {
+            check.run();
+        }
+        catch(VelocityLimitExceededException except)
+        {
+            return;
+        }
+        throw new AssertionError(description + " was not refused");
+    }
+}
@@ -0,0 +1,64 @@
+package mybank;
+
+/**
+ * Checks that the WorkloadGenerator sequence depends only on its parameters and seed. The project has no test
+ * framework, so the checks run from main and throw an AssertionError on the first failure.
+ */
+public class WorkloadGeneratorTest
+{
+    private static final double[] WEIGHTS = {5, 25, 25, 25, 0.01, 2, 17.99};
+    private static final int REQUESTS = 100_000;
+
+    public static void main(String[] args)
+    {
+        sameSeedGivesTheSameSequence();
+        otherSeedGivesAnotherSequence();
+        System.out.println("WorkloadGeneratorTest passed");
+    }
+
+    private static void sameSeedGivesTheSameSequence()
+    {
+        WorkloadGenerator first = newGenerator(42);
+        WorkloadGenerator second = newGenerator(42);
+        for(int i = 0; i < REQUESTS; i++)
+        {
+            WorkloadGenerator.Request expected = first.next();
+            WorkloadGenerator.Request actual = second.next();
+            check(expected.getOperation() == actual.getOperation()
+                  && expected.getAccountIndex() == actual.getAccountIndex()
+                  && expected.getName().equals(actual.getName())
+                  && expected.getPasscode().equals(actual.getPasscode())
+                  && expected.getAccountType() == actual.getAccountType()
+                  && expected.isCorrectPasscode() == actual.isCorrectPasscode()
+                  && Double.compare(expected.getAmount(), actual.getAmount()) == 0
+                  && expected.getMonths() == actual.getMonths(), "request " + i + " repeated with the same seed");
+        }
+    }
+
+    private static void otherSeedGivesAnotherSequence()
+    {
+        WorkloadGenerator first = newGenerator(42);
+        WorkloadGenerator second = newGenerator(43);
+        int differences = 0;
+        for(int i = 0; i < REQUESTS; i++)
+        {
+            WorkloadGenerator.Request expected = first.next();
+            WorkloadGenerator.Request actual = second.next();
+            if(expected.getAccountIndex() != actual.getAccountIndex()
+               || Double.compare(expected.getAmount(), actual.getAmount()) != 0)
+                differences++;
+        }
+        check(differences > REQUESTS / 2, "most requests differ with another seed");
+    }
+
+    private static WorkloadGenerator newGenerator(long seed)
+    {
+        return new WorkloadGenerator(seed, 10_000, 1.0, WEIGHTS, 0.2, 0.02, 500);
+    }
+
+    static void check(boolean condition, String description)
+    {
+        if(!condition)
+            throw new AssertionError(description);
+    }
+}